@@ -1,11 +1,37 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 
 /*
@@ -17,7 +43,28 @@ import java.util.List;
  * a driver/orchestrator class to provide the logic for CLI interaction by the user.
  */
 public class Inventory {
+    static final String CSV_HEADER = "Department,SubCategory,Name,Description\n";
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final String DEFLATE_EXTENSION = ".deflate";
+    static final int IO_BUFFER_SIZE = 64 * 1024;
+    // Amount of CSV text compressed per gzip member when saving in parallel
+    private static final int GZIP_BLOCK_SIZE = 1024 * 1024;
+
+    // Fuzzy lookups (see findClosestItems) give up comparing candidates after this long
+    private static final long FUZZY_LOOKUP_BUDGET_MILLIS = 50;
+
+    // Compression formats of data files
+    private enum Compression { NONE, GZIP, DEFLATE }
+
     private HashMap<String, HashMap<String, HashMap<String, Item>>> inventory;
+    // Compression format the data was loaded in, used again when saving to a file whose name does not specify one
+    private Compression compression = Compression.NONE;
+    // Index over item names; built by buildNameIndex(), or in the background (see buildNameIndexInBackground)
+    private ItemNameIndex nameIndex;
+    // Background build of the name index (null if none is running),
+    // and the updates to apply to the index once built, for changes made in the meantime
+    private FutureTask<ItemNameIndex> indexing;
+    private List<Consumer<ItemNameIndex>> pendingIndexUpdates;
 
     /*
      * Private constructor that is called by the public factory method
@@ -32,6 +79,24 @@ public class Inventory {
         return inventory;
     }
 
+    /*
+     * Stream over all items in the inventory, each with its department and subCategory.
+     * Items of the same department are next to each other in the stream. See InventorySpliterator
+     */
+    public Stream<InventoryEntry> stream() {
+        return StreamSupport.stream(new InventorySpliterator(inventory), false);
+    }
+
+    // Parallel version of stream(): splits the items (by subCategory) across all cores
+    public Stream<InventoryEntry> parallelStream() {
+        return StreamSupport.stream(new InventorySpliterator(inventory), true);
+    }
+
+    // Start a query (filter and export) over all items in the inventory. See InventoryQuery
+    public InventoryQuery query() {
+        return new InventoryQuery(new InventorySpliterator(inventory));
+    }
+
     /*
      * Public factory method for creating a new instance.
      * Instantiate a new Inventory object, load data from provided CSV file, and return it
@@ -48,18 +113,33 @@ public class Inventory {
      * to the internal data structure (the Hashmap). It does not automatically delete any existing data.
      * The method also assumes that data consists of rows of 4 columns each.
      * 
+     * The file may be gzip or deflate (zlib) compressed; this is detected from the file extension
+     * or, failing that, from the first bytes of the file. Compressed data is decompressed as it is
+     * read, and rows are parsed one at a time, so the whole file is never held in memory.
+     * 
      * It throws an error if the data contains duplicate items (based on their names),
-     * and if there are any rows that do not contain 4 columns
+     * if there are any rows that do not contain 4 columns, and if the file is not complete:
+     * if it cannot be read to the end (e.g. it is missing, or a compressed file is truncated),
+     * has no header row (e.g. it is empty), or does not end with a line break (e.g. it is still
+     * being written). This way, partial data is never loaded
      */
     public void loadData(String fileName) throws DuplicateKeyException, CorruptDataException {
         File file = new File(fileName);
-        List<String> rows = new ArrayList<>();
         
-        try {
-            rows = Files.readAllLines(file.toPath());
-            // start iteration at index 1, since we expect a header row at idx 0
-            for (int i=1; i<rows.size(); i++) {
-                String[] rowItems = rows.get(i).split(",");
+        try (LastByteInputStream input = new LastByteInputStream(openForReading(file));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            // Check the first row is the header row we expect
+            String row = reader.readLine();
+            if (row == null) {
+                throw new CorruptDataException("Unexpected input file: file is empty");
+            }
+            String[] headerItems = row.split(",");
+            if (headerItems.length != 4 || !headerItems[0].strip().equalsIgnoreCase("Department")) {
+                throw new CorruptDataException("Unexpected input file: header row is missing");
+            }
+
+            while ((row = reader.readLine()) != null) {
+                String[] rowItems = row.split(",");
                 // Check to ensure the row contains 4 elements
                 if (rowItems.length!=4) {
                     throw new CorruptDataException("Unexpected input file: extected row length of 4 but found " + rowItems.length);
@@ -78,73 +158,275 @@ public class Inventory {
                 } 
                 addItem(departmentName, subCategoryName, itemName, itemDescription);
             }
+
+            // Every row, including the last one, ends with a line break in a complete file
+            if (input.getLastByte() != '\n') {
+                throw new CorruptDataException("Unexpected input file: last row is incomplete");
+            }
         } catch (IOException ex) {
-            System.err.println("Error reading file: " + ex.getMessage());
+            throw new CorruptDataException("Error reading file: " + ex.getMessage(), ex);
+        }
+    }
+
+    /*
+     * Input stream that remembers the last byte read through it
+     * (used to check that a data file ends with a line break)
+     */
+    private static class LastByteInputStream extends FilterInputStream {
+        private int lastByte = -1;
+
+        LastByteInputStream(InputStream input) {
+            super(input);
+        }
+
+        int getLastByte() {
+            return lastByte;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                lastByte = b;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                lastByte = buffer[offset + n - 1] & 0xff;
+            }
+            return n;
         }
     }
 
+    /*
+     * Private utility method to open a data file for reading, wrapping it in a decompressing stream
+     * if the file is gzip or deflate compressed (by extension, or by its magic bytes), and remembering
+     * the compression format for saveData
+     */
+    private InputStream openForReading(File file) throws IOException {
+        InputStream input = new BufferedInputStream(new FileInputStream(file), IO_BUFFER_SIZE);
+        try {
+            compression = compressionOf(file, input);
+            switch (compression) {
+                case GZIP:
+                    return new GZIPInputStream(input, IO_BUFFER_SIZE);
+                case DEFLATE:
+                    return new InflaterInputStream(input);
+                default:
+                    return input;
+            }
+        } catch (IOException ex) {
+            // e.g. a file named .gz without a valid gzip header: close the file before giving up
+            input.close();
+            throw ex;
+        }
+    }
+
+    /*
+     * Utility method to find the compression format of a file from its name, if the name specifies one
+     * (returns null otherwise)
+     */
+    private static Compression compressionOf(File file) {
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(GZIP_EXTENSION)) {
+            return Compression.GZIP;
+        }
+        if (name.endsWith(DEFLATE_EXTENSION)) {
+            return Compression.DEFLATE;
+        }
+        return null;
+    }
+
+    /*
+     * Utility method to find the compression format of a file from its name or, failing that,
+     * from the first bytes of the provided (buffered) input stream of the file
+     */
+    private static Compression compressionOf(File file, InputStream input) throws IOException {
+        Compression byName = compressionOf(file);
+        if (byName != null) {
+            return byName;
+        }
+
+        // Peek at the first two bytes without consuming them
+        input.mark(2);
+        int first = input.read();
+        int second = input.read();
+        input.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return Compression.GZIP;
+        }
+        // zlib header: compression method 8 in the low nibble, and a header checksum divisible by 31
+        if (first != -1 && second != -1 && (first & 0x0f) == 8 && ((first << 8) | second) % 31 == 0) {
+            return Compression.DEFLATE;
+        }
+        return Compression.NONE;
+    }
+
     /*
      * Save data to a CSV file.
      * Note: this method iterates through the classe's internal data structure (the Hash Map),
      * extracts each item with it's corresponding informaiton, and writes it to the CSV on disk.
      * 
-     * It also makes a backup of the data file.
+     * Files ending in .gz are written gzip compressed, and files ending in .deflate are written
+     * deflate (zlib) compressed; anything else is written in the format the data was loaded in
+     * (so a compressed file without a telling extension stays compressed), or as plain text.
+     * 
+     * It also makes a backup of the data file, if there is one.
      */
     public void saveData(String fileName) throws IOException {
         String backupFileName = getBackupFileName(fileName);
         File file = new File(fileName);
 
-        // Make a backup copy of the data file
-        File backupFile = new File(backupFileName);
-        Files.move(file.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        // Make a backup copy of the data file (unless this is the first save to it)
+        if (file.exists()) {
+            File backupFile = new File(backupFileName);
+            Files.move(file.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
 
-        // Iterate depth-first over each department, each subCategory within, each
-        // Item within, and write each item's information - along with corresponding
-        // department and SubCategory as a row onto the CSV file
-        for (String departmentName : inventory.keySet()) {
-            HashMap<String, HashMap<String, Item>> department = inventory.get(departmentName);
-            for (String subCategoryName : department.keySet()) {
-                HashMap<String, Item> subCategory = department.get(subCategoryName);
-                for (String itemName : subCategory.keySet()) {
-                    Item item = subCategory.get(itemName);
-                    // Just a sanity check
-                    assert itemName.equals(item.getName());
-
-                    // Add quotation symbols to item description string (unless already there)
-                    // so that any potential commas (,) do not corrupt the CSV format
-                    String itemDescription = item.getDescription();
-                    if (!(
-                        itemDescription.charAt(0) == '"' && 
-                        itemDescription.charAt(itemDescription.length()-1) == '"')
-                    ) {
-                        itemDescription = '"' + itemDescription + '"';
-                    } 
-
-                    // Build row string from data elements, separated by commas
-                    String row = (
-                        departmentName + ", " +
-                        subCategoryName + ", " +
-                        itemName + ", " + 
-                        itemDescription + "\n"
-                    );
-
-                    Files.writeString(file.toPath(), row, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        Compression format = compressionOf(file);
+        if (format == null) {
+            format = compression;
+        }
+        if (format == Compression.GZIP) {
+            saveGzipData(file);
+            return;
+        }
+
+        OutputStream output = new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE);
+        if (format == Compression.DEFLATE) {
+            output = new DeflaterOutputStream(output);
+        }
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), IO_BUFFER_SIZE)) {
+            writer.write(CSV_HEADER);
+
+            // Iterate depth-first over each department, each subCategory within, each
+            // Item within, and write each item's information - along with corresponding
+            // department and SubCategory as a row onto the CSV file
+            for (String departmentName : inventory.keySet()) {
+                HashMap<String, HashMap<String, Item>> department = inventory.get(departmentName);
+                for (String subCategoryName : department.keySet()) {
+                    HashMap<String, Item> subCategory = department.get(subCategoryName);
+                    for (String itemName : subCategory.keySet()) {
+                        Item item = subCategory.get(itemName);
+                        // Just a sanity check
+                        assert itemName.equals(item.getName());
+                        writer.write(toCSVRow(departmentName, subCategoryName, item));
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Write the data as gzip, compressing blocks of rows in parallel.
+     * Each block is compressed into its own gzip member, and members are written out in order;
+     * a file of concatenated gzip members is itself a valid gzip file (and GZIPInputStream reads it whole).
+     * At most a few blocks per core are in flight at any time, so memory use stays bounded.
+     */
+    private void saveGzipData(File file) throws IOException {
+        int maxInFlight = 2 * Runtime.getRuntime().availableProcessors();
+        ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+        StringBuilder block = new StringBuilder(GZIP_BLOCK_SIZE + 256);
+        block.append(CSV_HEADER);
+
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE)) {
+            for (String departmentName : inventory.keySet()) {
+                HashMap<String, HashMap<String, Item>> department = inventory.get(departmentName);
+                for (String subCategoryName : department.keySet()) {
+                    HashMap<String, Item> subCategory = department.get(subCategoryName);
+                    for (Item item : subCategory.values()) {
+                        block.append(toCSVRow(departmentName, subCategoryName, item));
+                        if (block.length() >= GZIP_BLOCK_SIZE) {
+                            String text = block.toString();
+                            pending.add(CompletableFuture.supplyAsync(() -> gzipBlock(text)));
+                            block.setLength(0);
+                            if (pending.size() >= maxInFlight) {
+                                writeCompressedBlock(output, pending.poll());
+                            }
+                        }
+                    }
                 }
             }
+            if (block.length() > 0) {
+                String text = block.toString();
+                pending.add(CompletableFuture.supplyAsync(() -> gzipBlock(text)));
+            }
+            while (!pending.isEmpty()) {
+                writeCompressedBlock(output, pending.poll());
+            }
+        }
+    }
+
+    /*
+     * Utility method to wait for a compressed block and write it out,
+     * unwrapping any IO error raised while compressing
+     */
+    private static void writeCompressedBlock(OutputStream output, CompletableFuture<byte[]> block) throws IOException {
+        try {
+            output.write(block.join());
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) ex.getCause()).getCause();
+            }
+            throw ex;
         }
     }
 
+    /*
+     * Utility method to compress a block of text into a standalone gzip member
+     */
+    private static byte[] gzipBlock(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, IO_BUFFER_SIZE)) {
+            gzip.write(bytes);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return compressed.toByteArray();
+    }
+
+    /*
+     * Utility method to format an item - along with its department and subCategory - as a CSV row.
+     * Adds quotation symbols to the item description (unless already there)
+     * so that any potential commas (,) do not corrupt the CSV format
+     */
+    static String toCSVRow(String departmentName, String subCategoryName, Item item) {
+        String itemDescription = item.getDescription();
+        if (!(
+            itemDescription.length() >= 2 &&
+            itemDescription.startsWith("\"") && 
+            itemDescription.endsWith("\""))
+        ) {
+            itemDescription = '"' + itemDescription + '"';
+        } 
+
+        // Build row string from data elements, separated by commas
+        return (
+            departmentName + ", " +
+            subCategoryName + ", " +
+            item.getName() + ", " + 
+            itemDescription + "\n"
+        );
+    }
+
     /*
      * Utility method to generate file name for backup file
+     * (e.g. data.csv -> data_bak.csv, and data.csv.gz -> data_bak.csv.gz)
      */
     private String getBackupFileName(String fileName) throws IllegalArgumentException {
-        String[] fileNameElements = fileName.split("\\.");
-        if (fileNameElements.length != 2) {
+        int nameStart = fileName.lastIndexOf(File.separatorChar) + 1;
+        int extensionStart = fileName.indexOf('.', nameStart);
+        if (extensionStart <= nameStart) {
             throw new IllegalArgumentException("Unexpected file name.");
         }
-        String baseName = fileNameElements[0];
-        String extension = fileNameElements[1];
-        String backupFileName = baseName + "_bak." + extension;
+        String baseName = fileName.substring(0, extensionStart);
+        String extension = fileName.substring(extensionStart);
+        String backupFileName = baseName + "_bak" + extension;
         return backupFileName;
     }
 
@@ -179,14 +461,30 @@ public class Inventory {
             throw new DuplicateKeyException("Item with that name already exists. You can update it, or delete it first");
         }
 
+        Item item = new Item(itemName, unquote(itemDescription));
+        items.put(itemName, item);
+        updateNameIndex(index -> index.add(departmentName, subCategoryName, itemName));
+    }
+
+    /*
+     * Utility method to strip enclosing quotation symbols from an item description (if present)
+     */
+    static String unquote(String itemDescription) {
         if (
+            itemDescription.length() >= 2 &&
             itemDescription.charAt(0) == '"' && 
             itemDescription.charAt(itemDescription.length()-1) == '"') {
                 itemDescription = itemDescription.substring(1, itemDescription.length()-1);
             }
+        return itemDescription;
+    }
 
-        Item item = new Item(itemName, itemDescription);
-        items.put(itemName, item);
+    /*
+     * Start a new batch of changes to this inventory.
+     * See InventoryBatch: changes are collected, then validated and applied together on commit()
+     */
+    public InventoryBatch newBatch() {
+        return new InventoryBatch(this);
     }
 
     /* Check if provided item is in the inventory */
@@ -215,13 +513,149 @@ public class Inventory {
         }
     }
 
-    /* If provided item is in the inventory, delete it (the Item object)
+    /* If provided item is in the inventory, delete it (the Item object),
+     * along with its SubCategory and Department if they are left empty
      * Note: silently returns otherwise
      */
     public void deleteItem(String departmentName, String subCategoryName, String itemName) {
         if (hasItem(departmentName, subCategoryName, itemName)) {
-            inventory.get(departmentName).get(subCategoryName).remove(itemName);
+            HashMap<String, HashMap<String, Item>> subCategories = inventory.get(departmentName);
+            HashMap<String, Item> items = subCategories.get(subCategoryName);
+            items.remove(itemName);
+            updateNameIndex(index -> index.remove(departmentName, subCategoryName, itemName));
+
+            if (items.isEmpty()) {
+                subCategories.remove(subCategoryName);
+            }
+            if (subCategories.isEmpty()) {
+                inventory.remove(departmentName);
+            }
         } 
     }
 
+    /* If provided item is in the inventory, give it (the Item object) a new name
+     * Note: silently returns otherwise
+     */
+    public void renameItem(
+        String departmentName,
+        String subCategoryName,
+        String itemName,
+        String newItemName
+        ) throws DuplicateKeyException {
+
+        if (!hasItem(departmentName, subCategoryName, itemName) || itemName.equals(newItemName)) {
+            return;
+        }
+        HashMap<String, Item> items = inventory.get(departmentName).get(subCategoryName);
+        if (items.containsKey(newItemName)) {
+            throw new DuplicateKeyException("Item with that name already exists. You can update it, or delete it first");
+        }
+
+        Item item = items.remove(itemName);
+        item.setName(newItemName);
+        items.put(newItemName, item);
+        updateNameIndex(index -> index.rename(departmentName, subCategoryName, itemName, newItemName));
+    }
+
+    /* Return the location of every item with exactly the provided name, in any department or subCategory */
+    public List<ItemNameIndex.Entry> findItems(String itemName) {
+        return buildNameIndex().findExact(itemName);
+    }
+
+    /* Return the locations of up to maxResults items whose names are closest to the provided name
+     * (e.g. to suggest items for a mistyped name). See ItemNameIndex.findClosest
+     */
+    public List<ItemNameIndex.Entry> findClosestItems(String itemName, int maxResults) {
+        return buildNameIndex().findClosest(itemName, maxResults, FUZZY_LOOKUP_BUDGET_MILLIS);
+    }
+
+    /*
+     * Package-private method to keep the name index up to date with a change to the inventory
+     * (also used by InventoryBatch). The update is applied right away if the index is built,
+     * recorded for later if it is being built in the background, and dropped otherwise
+     */
+    void updateNameIndex(Consumer<ItemNameIndex> update) {
+        if (nameIndex != null) {
+            update.accept(nameIndex);
+        } else if (indexing != null) {
+            pendingIndexUpdates.add(update);
+        }
+    }
+
+    /*
+     * Start building the name index on a background (daemon) thread, so that neither loading nor
+     * browsing waits for it. The item names are captured on the calling thread before it returns;
+     * changes made to the inventory while the index is built are recorded, and applied to the index
+     * when the first lookup by name picks it up (see buildNameIndex).
+     */
+    public void buildNameIndexInBackground() {
+        if (nameIndex != null || indexing != null) {
+            return;
+        }
+
+        List<String> departmentNames = new ArrayList<>();
+        List<String> subCategoryNames = new ArrayList<>();
+        List<String> itemNames = new ArrayList<>();
+        for (String departmentName : inventory.keySet()) {
+            HashMap<String, HashMap<String, Item>> department = inventory.get(departmentName);
+            for (String subCategoryName : department.keySet()) {
+                for (String itemName : department.get(subCategoryName).keySet()) {
+                    departmentNames.add(departmentName);
+                    subCategoryNames.add(subCategoryName);
+                    itemNames.add(itemName);
+                }
+            }
+        }
+
+        indexing = new FutureTask<ItemNameIndex>(() -> {
+            ItemNameIndex index = new ItemNameIndex();
+            for (int i = 0; i < itemNames.size(); i++) {
+                index.add(departmentNames.get(i), subCategoryNames.get(i), itemNames.get(i));
+            }
+            return index;
+        });
+        pendingIndexUpdates = new ArrayList<>();
+        Thread indexer = new Thread(indexing, "name-indexer");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    /*
+     * Build the name index from all items in the inventory (unless already built), and return it.
+     * Once built, it is kept up to date as items are added, deleted, and renamed.
+     * If it is being built in the background, waits for that instead (and applies the changes made
+     * in the meantime), falling back to building it here if the background build failed.
+     */
+    public ItemNameIndex buildNameIndex() {
+        if (nameIndex == null && indexing != null) {
+            try {
+                ItemNameIndex index = indexing.get();
+                for (Consumer<ItemNameIndex> update : pendingIndexUpdates) {
+                    update.accept(index);
+                }
+                nameIndex = index;
+            } catch (ExecutionException ex) {
+                System.err.println("Error indexing item names: " + ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            indexing = null;
+            pendingIndexUpdates = null;
+        }
+
+        if (nameIndex == null) {
+            ItemNameIndex index = new ItemNameIndex();
+            for (String departmentName : inventory.keySet()) {
+                HashMap<String, HashMap<String, Item>> department = inventory.get(departmentName);
+                for (String subCategoryName : department.keySet()) {
+                    for (String itemName : department.get(subCategoryName).keySet()) {
+                        index.add(departmentName, subCategoryName, itemName);
+                    }
+                }
+            }
+            nameIndex = index;
+        }
+        return nameIndex;
+    }
+
 }
\ No newline at end of file
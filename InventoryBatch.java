@@ -0,0 +1,234 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/*
+ * A batch of item changes (adds, updates, deletes, and renames) that are applied to an Inventory together.
+ * Obtained from Inventory.newBatch(), filled using the chainable methods, and applied using commit().
+ *
+ * Changes are grouped by department and subCategory as they are collected, so that each
+ * department and subCategory map is looked up once per commit rather than once per change.
+ * Within a subCategory, changes are applied in the order they were added.
+ *
+ * commit() validates every change against the current inventory before applying any of them,
+ * so a batch is applied either completely or (if any change is invalid) not at all.
+ */
+public class InventoryBatch {
+    private enum Kind { ADD, UPDATE, DELETE, RENAME }
+
+    // A single change to an item, within a given department and subCategory
+    private static class Change {
+        final Kind kind;
+        final String itemName;
+        // New description for ADD and UPDATE, new name for RENAME
+        final String value;
+
+        Change(Kind kind, String itemName, String value) {
+            this.kind = kind;
+            this.itemName = itemName;
+            this.value = value;
+        }
+    }
+
+    private final Inventory inventory;
+    private final LinkedHashMap<String, LinkedHashMap<String, List<Change>>> changes;
+    private int size;
+
+    /*
+     * Package-private constructor that is called by Inventory.newBatch()
+     */
+    InventoryBatch(Inventory inventory) {
+        this.inventory = inventory;
+        this.changes = new LinkedHashMap<String, LinkedHashMap<String, List<Change>>>();
+    }
+
+    // Add a new item
+    // Note: each of these methods throws an IllegalArgumentException (and collects nothing)
+    // if a name is null or empty, or a description is null
+    public InventoryBatch addItem(String departmentName, String subCategoryName, String itemName, String itemDescription) {
+        return add(departmentName, subCategoryName, new Change(Kind.ADD, itemName, itemDescription));
+    }
+
+    // Replace the description of an existing item
+    public InventoryBatch updateItem(String departmentName, String subCategoryName, String itemName, String itemDescription) {
+        return add(departmentName, subCategoryName, new Change(Kind.UPDATE, itemName, itemDescription));
+    }
+
+    // Delete an existing item
+    public InventoryBatch deleteItem(String departmentName, String subCategoryName, String itemName) {
+        return add(departmentName, subCategoryName, new Change(Kind.DELETE, itemName, null));
+    }
+
+    // Rename an existing item (within its department and subCategory)
+    public InventoryBatch renameItem(String departmentName, String subCategoryName, String itemName, String newItemName) {
+        return add(departmentName, subCategoryName, new Change(Kind.RENAME, itemName, newItemName));
+    }
+
+    // Number of changes collected so far
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Private utility method to file a change under its department and subCategory.
+     * Names and descriptions are checked here, as changes are collected, so that nothing
+     * can fail once commit() has started changing the inventory
+     */
+    private InventoryBatch add(String departmentName, String subCategoryName, Change change) throws IllegalArgumentException {
+        requireName(departmentName, "Department");
+        requireName(subCategoryName, "SubCategory");
+        requireName(change.itemName, "Item name");
+        if (change.kind == Kind.RENAME) {
+            requireName(change.value, "New item name");
+        } else if (change.kind != Kind.DELETE && change.value == null) {
+            throw new IllegalArgumentException("Item description is missing");
+        }
+
+        changes.computeIfAbsent(departmentName, name -> new LinkedHashMap<String, List<Change>>())
+            .computeIfAbsent(subCategoryName, name -> new ArrayList<Change>())
+            .add(change);
+        size++;
+        return this;
+    }
+
+    /*
+     * Private utility method to reject a missing or empty name
+     */
+    private static void requireName(String name, String what) throws IllegalArgumentException {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException(what + " is missing");
+        }
+    }
+
+    /*
+     * Validate all collected changes, then apply them to the inventory.
+     * Throws an error - without changing the inventory - if an item would be added (or renamed)
+     * over an existing one, or if an item to update, delete, or rename does not exist.
+     * Subcategories and departments left empty by deletions are removed.
+     * The batch is empty again afterwards, and can be reused.
+     */
+    public void commit() throws DuplicateKeyException, NoSuchElementException {
+        HashMap<String, HashMap<String, HashMap<String, Item>>> data = inventory.getInventory();
+        validate(data);
+
+        for (Map.Entry<String, LinkedHashMap<String, List<Change>>> departmentChanges : changes.entrySet()) {
+            String departmentName = departmentChanges.getKey();
+            HashMap<String, HashMap<String, Item>> subCategories = data.get(departmentName);
+            if (subCategories == null) {
+                subCategories = new HashMap<String, HashMap<String, Item>>();
+                data.put(departmentName, subCategories);
+            }
+
+            for (Map.Entry<String, List<Change>> subCategoryChanges : departmentChanges.getValue().entrySet()) {
+                String subCategoryName = subCategoryChanges.getKey();
+                HashMap<String, Item> items = subCategories.get(subCategoryName);
+                if (items == null) {
+                    items = new HashMap<String, Item>();
+                    subCategories.put(subCategoryName, items);
+                }
+
+                for (Change change : subCategoryChanges.getValue()) {
+                    apply(departmentName, subCategoryName, items, change);
+                }
+
+                // Delete the SubCategory if the changes left it empty
+                if (items.isEmpty()) {
+                    subCategories.remove(subCategoryName);
+                }
+            }
+
+            // Delete the Department if the changes left it empty
+            if (subCategories.isEmpty()) {
+                data.remove(departmentName);
+            }
+        }
+
+        changes.clear();
+        size = 0;
+    }
+
+    /*
+     * Private utility method to check every change against the current inventory, in order,
+     * tracking the items each earlier change in the same subCategory adds or removes
+     */
+    private void validate(HashMap<String, HashMap<String, HashMap<String, Item>>> data)
+        throws DuplicateKeyException, NoSuchElementException {
+
+        for (Map.Entry<String, LinkedHashMap<String, List<Change>>> departmentChanges : changes.entrySet()) {
+            HashMap<String, HashMap<String, Item>> subCategories = data.get(departmentChanges.getKey());
+
+            for (Map.Entry<String, List<Change>> subCategoryChanges : departmentChanges.getValue().entrySet()) {
+                HashMap<String, Item> items = subCategories == null ? null : subCategories.get(subCategoryChanges.getKey());
+                HashSet<String> added = new HashSet<>();
+                HashSet<String> removed = new HashSet<>();
+
+                for (Change change : subCategoryChanges.getValue()) {
+                    boolean exists = added.contains(change.itemName) ||
+                        (items != null && items.containsKey(change.itemName) && !removed.contains(change.itemName));
+
+                    switch (change.kind) {
+                        case ADD:
+                            if (exists) {
+                                throw new DuplicateKeyException("Item already exists: " + change.itemName);
+                            }
+                            added.add(change.itemName);
+                            removed.remove(change.itemName);
+                            break;
+                        case UPDATE:
+                            if (!exists) {
+                                throw new NoSuchElementException("Item not found: " + change.itemName);
+                            }
+                            break;
+                        case DELETE:
+                        case RENAME:
+                            if (!exists) {
+                                throw new NoSuchElementException("Item not found: " + change.itemName);
+                            }
+                            if (change.kind == Kind.RENAME) {
+                                boolean targetExists = added.contains(change.value) ||
+                                    (items != null && items.containsKey(change.value) && !removed.contains(change.value));
+                                if (targetExists) {
+                                    throw new DuplicateKeyException("Item already exists: " + change.value);
+                                }
+                                added.add(change.value);
+                                removed.remove(change.value);
+                            }
+                            added.remove(change.itemName);
+                            removed.add(change.itemName);
+                            break;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Private utility method to apply a single (already validated) change to a subCategory's items,
+     * keeping the inventory's name index up to date
+     */
+    private void apply(String departmentName, String subCategoryName, HashMap<String, Item> items, Change change) {
+        switch (change.kind) {
+            case ADD:
+                items.put(change.itemName, new Item(change.itemName, Inventory.unquote(change.value)));
+                inventory.updateNameIndex(index -> index.add(departmentName, subCategoryName, change.itemName));
+                break;
+            case UPDATE:
+                items.get(change.itemName).setDescription(Inventory.unquote(change.value));
+                break;
+            case DELETE:
+                items.remove(change.itemName);
+                inventory.updateNameIndex(index -> index.remove(departmentName, subCategoryName, change.itemName));
+                break;
+            case RENAME:
+                Item item = items.remove(change.itemName);
+                item.setName(change.value);
+                items.put(change.value, item);
+                inventory.updateNameIndex(index -> index.rename(departmentName, subCategoryName, change.itemName, change.value));
+                break;
+        }
+    }
+}
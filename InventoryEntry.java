@@ -0,0 +1,34 @@
+/*
+ * An item together with the department and subCategory it is stored under.
+ * Produced when streaming over all items of an Inventory (see Inventory.stream()).
+ */
+public class InventoryEntry {
+    private final String departmentName;
+    private final String subCategoryName;
+    private final Item item;
+
+    public InventoryEntry(String departmentName, String subCategoryName, Item item) {
+        this.departmentName = departmentName;
+        this.subCategoryName = subCategoryName;
+        this.item = item;
+    }
+
+    public String getDepartmentName() {
+        return departmentName;
+    }
+
+    public String getSubCategoryName() {
+        return subCategoryName;
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    /*
+     * Format the entry as a row of the data file (see Inventory.saveData)
+     */
+    public String toCSVRow() {
+        return Inventory.toCSVRow(departmentName, subCategoryName, item);
+    }
+}
@@ -5,34 +5,91 @@ import java.util.InputMismatchException;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /*
  * Orchestrator class for the inventory management program.
  * Provides CLI for the user to perform CRUD operations.
  */
 public class InventoryManager {
-    Inventory inventory;
+    // Number of closest item names offered when a name is not found
+    private static final int MAX_SUGGESTIONS = 5;
+
+    // volatile, since it may be loaded on a background thread (in fast-start mode)
+    volatile Inventory inventory;
     String datafileName;
     Scanner scanner;
+    // Background load of the inventory in fast-start mode (null once loaded, or when loaded up front)
+    private volatile FutureTask<Inventory> loading;
+    // Watcher of the data file (null if it is not watched), and the changes it found but the CLI has not applied yet
+    private InventoryReloader reloader;
+    private final ConcurrentLinkedQueue<InventoryReloader.Change> reloadedChanges = new ConcurrentLinkedQueue<>();
 
     /*
      * Public constructor. Instantiates an Inventory instances and handles corrupt data when loading
      */
     public InventoryManager(String dataFileName) throws DuplicateKeyException {
-        try {
-            this.inventory = Inventory.loadFromCSV(dataFileName);
-        } catch (CorruptDataException ex) {
-            System.out.println("Error loading data");
-            System.err.println(ex.getMessage());
-            System.exit(1);
-        }
+        this(dataFileName, false, false);
+    }
+
+    /*
+     * Public constructor with optional fast-start mode, and optional watching of the data file.
+     * In fast-start mode, starts loading the Inventory on a background thread and returns right away,
+     * so the menus can be shown while data loads. The first operation that needs the data waits for it
+     * (see getInventory), and any error loading it is handled there.
+     * When watching the data file, changes made to it are applied to the inventory between menus
+     * (see InventoryReloader).
+     */
+    public InventoryManager(String dataFileName, boolean fastStart, boolean watchDataFile) throws DuplicateKeyException {
         this.datafileName = dataFileName;
         scanner = new Scanner(System.in);
+
+        // Start watching before loading, so that no change made to the file after loading is missed
+        if (watchDataFile) {
+            try {
+                reloader = new InventoryReloader(this, dataFileName);
+            } catch (IOException ex) {
+                System.err.println("Data file changes will not be reloaded: " + ex.getMessage());
+            }
+        }
+
+        if (fastStart) {
+            loading = new FutureTask<Inventory>(this::loadInventory);
+            Thread loader = new Thread(loading, "inventory-loader");
+            loader.setDaemon(true);
+            loader.start();
+        } else {
+            try {
+                this.inventory = loadInventory();
+            } catch (CorruptDataException ex) {
+                System.out.println("Error loading data");
+                System.err.println(ex.getMessage());
+                System.exit(1);
+            }
+        }
+    }
+
+    /*
+     * Private helper method to load the Inventory from the data file, and start building its name index
+     * in the background, so that only Find (and not startup or browsing) waits for the index.
+     * If the data file is watched, the reloader starts with a snapshot of the data as loaded,
+     * taken before the CLI can edit it
+     */
+    private Inventory loadInventory() throws DuplicateKeyException, CorruptDataException {
+        Inventory loaded = Inventory.loadFromCSV(datafileName);
+        if (reloader != null) {
+            reloader.start(loaded);
+        }
+        loaded.buildNameIndexInBackground();
+        return loaded;
     }
 
     /*
      * Driver main method.
      * Instanciates a new InventoryManager instance and handles duplicate keys in data when loading
+     * With the --fast-start argument, data is loaded in the background while the main menu is shown.
      * Prints a welcome message to the user and calls the mainMenu method to start the program flow.
      * At the end, saves data (and handles any writing error) and exits.
      */
@@ -40,9 +97,10 @@ public class InventoryManager {
 
         // Instantiate a new InvventoryManager, and handle duplicate data error
         String filename = "data.csv";
+        boolean fastStart = args.length > 0 && args[0].equals("--fast-start");
         InventoryManager manager;
         try {
-            manager = new InventoryManager(filename);
+            manager = new InventoryManager(filename, fastStart, true);
         } catch (DuplicateKeyException ex) {
             System.out.println("Duplicate items detected in input data file. Please try again");
             System.err.println(ex.getMessage());
@@ -60,9 +118,12 @@ public class InventoryManager {
         // Call mainMenu() method to get started with program flow
         manager.mainMenu();
 
+        // Stop watching before writing, so the save is not picked up as a change
+        manager.stopWatching();
+
         // Write updated data onto the data file, handling any IO errors
         try {
-            manager.inventory.saveData(manager.datafileName);
+            manager.getInventory().saveData(manager.datafileName);
         } catch (IOException ex) {
             System.out.println("Error saving data");
             System.err.println(ex.getMessage());
@@ -73,19 +134,95 @@ public class InventoryManager {
         System.out.println();
     }
 
+    /*
+     * Accessor for the inventory currently in use.
+     * In fast-start mode, waits for the background load to finish (the first time only),
+     * handling corrupt or duplicate data the same way as when loading up front.
+     */
+    public Inventory getInventory() {
+        if (loading != null) {
+            awaitLoading();
+        }
+        return inventory;
+    }
+
+    // Private helper method to wait for the background load, and exit if the data could not be loaded
+    private synchronized void awaitLoading() {
+        if (loading == null) {
+            return;
+        }
+        try {
+            inventory = loading.get();
+            loading = null;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof DuplicateKeyException) {
+                System.out.println("Duplicate items detected in input data file. Please try again");
+            } else {
+                System.out.println("Error loading data");
+            }
+            System.err.println(ex.getCause().getMessage());
+            System.exit(1);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            System.out.println("Error loading data");
+            System.exit(1);
+        }
+    }
+
+    /*
+     * Queue changes found in the data file by the reloader (called from its thread).
+     * They are applied by the CLI thread, the next time a menu is shown
+     */
+    public void queueReloadedChanges(List<InventoryReloader.Change> changes) {
+        reloadedChanges.addAll(changes);
+    }
+
+    /*
+     * Apply the changes queued by the reloader to the inventory.
+     * Only called when showing a menu that does not hold on to any item, so that no menu
+     * is left working on an item that a change deleted
+     */
+    private void applyReloadedChanges() {
+        if (reloadedChanges.isEmpty()) {
+            return;
+        }
+        Inventory current = getInventory();
+        int applied = 0;
+        InventoryReloader.Change change;
+        while ((change = reloadedChanges.poll()) != null) {
+            change.applyTo(current);
+            applied++;
+        }
+        System.out.println();
+        System.out.println("Data file changed: " + applied + " items reloaded");
+    }
+
+    /*
+     * Stop watching the data file (if watched), and apply any changes found so far
+     */
+    public void stopWatching() {
+        if (reloader != null) {
+            reloader.stop();
+        }
+        applyReloadedChanges();
+    }
+
     /*
      * Main Menu: Entry point for the CLI program menu.
-     * Present user with options to browswer inventory, add a new item, or quit.
+     * Present user with options to browswer inventory, add a new item, find an item, or quit.
      */
     public void mainMenu() {
         // Initialize and populate array for menu options
         List<String> menuOptions = new ArrayList<>();
         menuOptions.add("Browse Inventory");
         menuOptions.add("Add a New Item");
+        menuOptions.add("Find Item by Name");
         menuOptions.add("Quit");
 
         // Loop through menu until user (correctly) selects to advance to a sub-menu or quit
         while (true) {
+            applyReloadedChanges();
+
             // Iterate through menu options array and print them to the user, prompting user to make a selection
             System.out.println();
             System.out.println("Main Menu");
@@ -118,6 +255,9 @@ public class InventoryManager {
                     addItem();
                     break;
                 case 3:
+                    findItem();
+                    break;
+                case 4:
                     return;
                 default:
                     System.out.println();
@@ -140,9 +280,11 @@ public class InventoryManager {
     public void departmentsMenu() {
         // Loop through menu until user (correctly) selects to advance to a sub-menu or go back to main menu
         while (true) {
+            applyReloadedChanges();
+
             // Initialize and populate array for menu options, based on current inventory
             List<String> menuOptions = new ArrayList<>();
-            for (String departmentName : inventory.getInventory().keySet()) {
+            for (String departmentName : getInventory().getInventory().keySet()) {
                 menuOptions.add(departmentName);
             }
             menuOptions.add("Main Menu");
@@ -206,13 +348,99 @@ public class InventoryManager {
         
         // Call approrpiate method to enter data into the inventory, handling duplicate input
         try {
-            inventory.addItem(departmentName, subCategoryName, itemName, itemDescription);
+            getInventory().addItem(departmentName, subCategoryName, itemName, itemDescription);
         } catch (DuplicateKeyException ex) {
             System.out.print("Item with this name is already in inventory");
             System.out.print("Please try again with a uniquely-named item");
         }
     }
 
+    /*
+     * Menu to find an item by its name.
+     * If no item has exactly the entered name (e.g. it was mistyped), offers the closest names instead.
+     */
+    public void findItem() {
+        System.out.println();
+        System.out.print("Enter Item Name: ");
+        String itemName = nextLineFromCLI();
+
+        List<ItemNameIndex.Entry> matches = getInventory().findItems(itemName);
+        if (matches.size() == 1) {
+            ItemNameIndex.Entry match = matches.get(0);
+            viewItem(match.getDepartmentName(), match.getSubCategoryName(), match.getItemName());
+            return;
+        }
+        if (matches.isEmpty()) {
+            matches = getInventory().findClosestItems(itemName, MAX_SUGGESTIONS);
+            if (matches.isEmpty()) {
+                System.out.println();
+                System.out.println("No items found with a name like " + itemName);
+                return;
+            }
+            System.out.println();
+            System.out.println("No item named " + itemName + ". Did you mean:");
+        }
+        matchesMenu(matches);
+    }
+
+    // Menu that displays items found by name, to choose one of them
+    public void matchesMenu(List<ItemNameIndex.Entry> matches) {
+        // Initialize and populate array for menu options
+        List<String> menuOptions = new ArrayList<>();
+        for (ItemNameIndex.Entry match : matches) {
+            menuOptions.add(match.toString());
+        }
+        menuOptions.add("Main Menu");
+
+        // Loop through menu until user (correctly) selects an item or goes back to main menu
+        while (true) {
+            // Iterate through menu options array and print them to the user, prompting user to make a selection
+            System.out.println();
+            System.out.println("Choose Item:");
+            System.out.println();
+            for (int i=0; i<menuOptions.size(); i++) {
+                System.out.println(i+1 + ". " + menuOptions.get(i));
+            }
+            System.out.println();
+            System.out.print("Enter Option Number: ");
+
+            // input selection from user, handling invalid String input
+            int input = 0;
+            try {
+                input = scanner.nextInt();
+            } catch (InputMismatchException ex) {
+                System.out.println();
+                System.out.println("Invalid Input. Please ensure you are entering an integer.");
+                System.out.println();
+                continue;
+            } finally {
+                flushScanner(); // flushes out scanner (of standard input), in case it contains any leftover characters
+            }
+
+            // Switch (using an if/if else/else block) to appropriate action based on input, 
+            // calling the appropriate sub-menu (and handling out-of-range input)
+            if (input <= menuOptions.size()-1 && input > 0) {
+                ItemNameIndex.Entry match = matches.get(input-1);
+                try {
+                    viewItem(match.getDepartmentName(), match.getSubCategoryName(), match.getItemName());
+                } catch (NoSuchElementException ex) {
+                    System.out.println();
+                    System.out.println("Something went wrong. Item not found");
+                    System.out.println();
+                    continue;
+                }
+                return;
+            } else if (input == menuOptions.size()) {
+                return;
+            } else {
+                System.out.println();
+                System.out.println("Invalid Input. Please ensure the number you enter is within range of the options shown.");
+                System.out.println();
+                continue;
+            }
+        }
+    }
+
     // Private helper method to input a line from the CLI using the scanner
     private String nextLineFromCLI() {
         return scanner.nextLine().strip();
@@ -222,9 +450,17 @@ public class InventoryManager {
     public boolean subDepartmentsMenu(String departmentName) {
         // Loop through menu until user (correctly) selects to advance to a sub-menu or go back
         while (true) {
+            applyReloadedChanges();
+
             // Initialize and populate array for menu options, based on current inventory
+            // (returning if the department no longer exists, e.g. after the data file changed)
             List<String> menuOptions = new ArrayList<>();
-            HashMap<String, HashMap<String, Item>> subDepartments = inventory.getInventory().get(departmentName);
+            HashMap<String, HashMap<String, Item>> subDepartments = getInventory().getInventory().get(departmentName);
+            if (subDepartments == null) {
+                System.out.println();
+                System.out.println("Department " + departmentName + " no longer exists");
+                return false;
+            }
             for (String subDepartmentName : subDepartments.keySet()) {
                 menuOptions.add(subDepartmentName);
             }
@@ -279,11 +515,19 @@ public class InventoryManager {
 
     // Menu that displays Items 
     public boolean itemsMenu(String departmentName, String subDepartmentName) {
-        HashMap<String, HashMap<String, Item>> department = inventory.getInventory().get(departmentName);
-        HashMap<String, Item> items = department.get(subDepartmentName);
         // Loop through menu until user (correctly) selects to advance to a sub-menu or go back
         while (true) {
+            applyReloadedChanges();
+
             // Initialize and populate array for menu options, based on current inventory
+            // (returning if the sub-department no longer exists, e.g. after the data file changed)
+            HashMap<String, HashMap<String, Item>> department = getInventory().getInventory().get(departmentName);
+            HashMap<String, Item> items = department == null ? null : department.get(subDepartmentName);
+            if (items == null) {
+                System.out.println();
+                System.out.println("Sub-Department " + subDepartmentName + " no longer exists");
+                return false;
+            }
             List<String> menuOptions = new ArrayList<>();
             for (String itemName : items.keySet()) {
                 menuOptions.add(itemName);
@@ -342,11 +586,16 @@ public class InventoryManager {
         }
     }
 
-    // Update name of the provided iem
-    public void setItemName(Item item) {
+    // Update name of the provided iem, handling duplicate input
+    public void setItemName(String departmentName, String subDepartmentName, Item item) {
         System.out.print("Enter Item Name: ");
         String itemName = nextLineFromCLI();
-        item.setName(itemName);
+        try {
+            getInventory().renameItem(departmentName, subDepartmentName, item.getName(), itemName);
+        } catch (DuplicateKeyException ex) {
+            System.out.println("Item with this name is already in inventory");
+            System.out.println("Please try again with a uniquely-named item");
+        }
         System.out.println();
     }
 
@@ -394,24 +643,15 @@ public class InventoryManager {
             // Switch to appropriate action based on input, calling the appropriate sub-menu (and handling out-of-range input)
             switch(input) {
                 case 1:
-                    inventory.getInventory()
-                                .get(departmentName)
-                                .get(subDepartmentName)
-                                .remove(itemName);
-
-                    // Delete encompassing SubCategory if empty
-                    if (inventory.getInventory()
-                                .get(departmentName)
-                                .get(subDepartmentName).isEmpty()) {
-                                    inventory.getInventory()
-                                        .get(departmentName)
-                                        .remove(subDepartmentName);
+                    // Check the item is still there (its Department or SubCategory may be gone too)
+                    if (!getInventory().hasItem(departmentName, subDepartmentName, itemName)) {
+                        System.out.println();
+                        System.out.println("Item no longer exists");
+                        return true;
                     }
 
-                    // Delete encompassing Department if empty
-                    if (inventory.getInventory().get(departmentName).isEmpty()) {
-                        inventory.getInventory().remove(departmentName);
-                    }
+                    // Delete the item, along with its SubCategory and Department if left empty
+                    getInventory().deleteItem(departmentName, subDepartmentName, itemName);
                     return true;
                 case 2:
                     return false;
@@ -427,10 +667,7 @@ public class InventoryManager {
     // Menu to view item
     public boolean viewItem(String departmentName, String subDepartmentName, String itemName) throws NoSuchElementException {
         // Get specified item from inventory, throwing an exception if item is not found
-        Item item = inventory.getInventory()
-                                .get(departmentName)
-                                .get(subDepartmentName)
-                                .get(itemName);
+        Item item = getInventory().getItem(departmentName, subDepartmentName, itemName);
         if (item == null) {
             throw new NoSuchElementException("Item not found");
         }
@@ -468,13 +705,13 @@ public class InventoryManager {
             // Switch to appropriate action based on input, calling the appropriate sub-menu (and handling out-of-range input)
             switch (input) {
                 case 1:
-                    setItemName(item);
+                    setItemName(departmentName, subDepartmentName, item);
                     break;
                 case 2:
                     setItemDescription(item);
                     break;
                 case 3:
-                    boolean mainMenu = deleteItem(departmentName, subDepartmentName, itemName);
+                    boolean mainMenu = deleteItem(departmentName, subDepartmentName, item.getName());
                     if (mainMenu) {
                         return true;
                     }
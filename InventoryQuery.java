@@ -0,0 +1,119 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.StreamSupport;
+
+/*
+ * Query over all items of an inventory, for reports such as
+ * "all items whose description mentions X, grouped by department, written to CSV":
+ *
+ *     inventory.query().parallel().descriptionContains("X").exportCSV("report.csv");
+ *
+ * Filters are applied as items are streamed (see InventorySpliterator), and matching items are
+ * formatted and written straight to the output file, without collecting intermediate lists.
+ * Results keep the inventory's order, so items stay grouped by department.
+ *
+ * A query can be run (counted or exported) only once.
+ */
+public class InventoryQuery {
+    // Parallel exports are streamed in windows of about this many items (see exportCSV)
+    private static final long EXPORT_WINDOW_ITEMS = 64 * 1024;
+
+    private final InventorySpliterator items;
+    private Predicate<InventoryEntry> condition;
+    private boolean parallel;
+
+    /*
+     * Package-private constructor that is called by Inventory.query()
+     */
+    InventoryQuery(InventorySpliterator items) {
+        this.items = items;
+        this.condition = entry -> true;
+    }
+
+    // Filter and format items on all cores (the output is still written in order)
+    public InventoryQuery parallel() {
+        parallel = true;
+        return this;
+    }
+
+    // Keep only the items matching the provided condition
+    public InventoryQuery filter(Predicate<InventoryEntry> condition) {
+        this.condition = this.condition.and(condition);
+        return this;
+    }
+
+    // Keep only the items in the provided department
+    public InventoryQuery inDepartment(String departmentName) {
+        return filter(entry -> entry.getDepartmentName().equals(departmentName));
+    }
+
+    // Keep only the items whose description mentions the provided text (ignoring case)
+    public InventoryQuery descriptionContains(String text) {
+        String lowerCaseText = text.toLowerCase();
+        return filter(entry -> entry.getItem().getDescription().toLowerCase().contains(lowerCaseText));
+    }
+
+    // Count the matching items
+    public long count() {
+        return StreamSupport.stream(items, parallel).filter(condition).count();
+    }
+
+    /*
+     * Write the matching items to a CSV file, in the same format as the data file.
+     * Returns the number of items written
+     */
+    public long exportCSV(String fileName) throws IOException {
+        return exportCSV(fileName, Inventory.CSV_HEADER, InventoryEntry::toCSVRow);
+    }
+
+    /*
+     * Write the matching items to a file, using the provided header row and
+     * projection (which turns an item into a row, including its line ending).
+     * Rows are produced by the stream (in parallel, if requested) and written in order
+     * through a buffered writer on a file channel.
+     *
+     * To write in order, a parallel stream holds back the rows of later items until all earlier
+     * rows are written, which could add up to most of the report. So items are streamed in windows
+     * of whole subCategories holding about EXPORT_WINDOW_ITEMS items (or a single larger subCategory),
+     * one window after the other, and at most one window's rows are ever held back.
+     *
+     * Returns the number of items written
+     */
+    public long exportCSV(String fileName, String header, Function<InventoryEntry, String> projection) throws IOException {
+        long[] written = new long[1];
+        try (FileChannel channel = FileChannel.open(
+                Paths.get(fileName),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+             Writer writer = new BufferedWriter(
+                Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1),
+                Inventory.IO_BUFFER_SIZE)) {
+
+            writer.write(header);
+            InventorySpliterator window;
+            while ((window = items.splitPrefix(EXPORT_WINDOW_ITEMS)) != null) {
+                StreamSupport.stream(window, parallel).filter(condition).map(projection).forEachOrdered(row -> {
+                    try {
+                        writer.write(row);
+                        written[0]++;
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return written[0];
+    }
+}
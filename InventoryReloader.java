@@ -0,0 +1,299 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+ * Background hot-reloader for the inventory data file.
+ * Watches the directory containing the data file (using a WatchService), and whenever the
+ * data file is created or modified, parses the new file and compares it with the previous version
+ * of the file (starting with the data as it was loaded). The differences - items added, deleted,
+ * or with a new description - are handed to the InventoryManager, which applies them to the live
+ * inventory on the CLI thread, between menus.
+ *
+ * Parsing and diffing happen on the watcher thread, so the CLI never waits on a reload, and applying
+ * the changes takes time proportional to their number. Items the file did not change keep any edits
+ * made in the CLI; for items the file did change, the file's version wins.
+ */
+public class InventoryReloader implements Runnable {
+    // Time the data file's size and modification time must stay the same after a change event,
+    // so that a writer has a chance to finish the file
+    private static final long SETTLE_MILLIS = 200;
+    // Largest share of the previous items a single reload may delete; a file missing more of
+    // them is more likely damaged (e.g. truncated by a failed copy) than deliberately edited
+    private static final double MAX_DELETED_SHARE = 0.5;
+
+    /*
+     * A change to a single item, found by comparing two versions of the data file
+     */
+    public static class Change {
+        private final String departmentName;
+        private final String subCategoryName;
+        private final String itemName;
+        // New description of the item, or null if the item was deleted
+        private final String itemDescription;
+
+        public Change(String departmentName, String subCategoryName, String itemName, String itemDescription) {
+            this.departmentName = departmentName;
+            this.subCategoryName = subCategoryName;
+            this.itemName = itemName;
+            this.itemDescription = itemDescription;
+        }
+
+        /*
+         * Apply the change to the provided inventory: add or update the item, or delete it.
+         * Note: an item the CLI has already added, renamed, or deleted is handled gracefully
+         */
+        public void applyTo(Inventory inventory) {
+            if (itemDescription == null) {
+                inventory.deleteItem(departmentName, subCategoryName, itemName);
+                return;
+            }
+            Item item = inventory.getItem(departmentName, subCategoryName, itemName);
+            if (item != null) {
+                item.setDescription(itemDescription);
+                return;
+            }
+            try {
+                inventory.addItem(departmentName, subCategoryName, itemName, itemDescription);
+            } catch (DuplicateKeyException ex) {
+                // Not possible, since the item was just looked up
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    private final InventoryManager manager;
+    private final Path dataFile;
+    private final WatchService watchService;
+    private volatile Thread thread;
+    // Snapshot of the previous version of the data file: the hash of each item's description,
+    // by department, subCategory, and item name (sharing the name strings with the loaded inventory,
+    // so that it takes a fraction of the memory of a copy). Only used by the watcher thread
+    private HashMap<String, HashMap<String, HashMap<String, Integer>>> previous;
+    // Number of items in the previous version
+    private int previousSize;
+
+    /*
+     * Public constructor. Registers the data file's directory with a new WatchService
+     */
+    public InventoryReloader(InventoryManager manager, String dataFileName) throws IOException {
+        this.manager = manager;
+        this.dataFile = Paths.get(dataFileName).toAbsolutePath();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        dataFile.getParent().register(
+            watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /*
+     * Start watching on a background (daemon) thread, so it never keeps the program alive.
+     * The provided inventory is the data as loaded from the file, which later versions of the file
+     * are compared against. It is snapshot on the calling thread, so it must not have been edited yet.
+     */
+    public void start(Inventory loaded) {
+        previous = snapshot(loaded);
+        previousSize = count(previous);
+        thread = new Thread(this, "inventory-reloader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /*
+     * Stop watching. Should be called before the program writes the data file itself,
+     * so that its own save is not picked up as an upstream change.
+     */
+    public void stop() {
+        try {
+            watchService.close();
+        } catch (IOException ex) {
+            System.err.println("Error closing file watcher: " + ex.getMessage());
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Watch loop: wait for events on the data file's directory and reload when
+     * one of them concerns the data file
+     */
+    @Override
+    public void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (ClosedWatchServiceException | InterruptedException ex) {
+                return;
+            }
+
+            boolean dataFileChanged = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    dataFileChanged = true;
+                    continue;
+                }
+                Path changed = (Path) event.context();
+                if (changed.equals(dataFile.getFileName())) {
+                    dataFileChanged = true;
+                }
+            }
+            key.reset();
+
+            if (dataFileChanged) {
+                try {
+                    awaitSettled();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                // Drop any further events raised by the same write, they are covered by this reload
+                WatchKey pending;
+                while ((pending = watchService.poll()) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                reload();
+            }
+        }
+    }
+
+    /*
+     * Private utility method to wait until the data file's size and modification time
+     * have not changed for SETTLE_MILLIS (or the file is gone)
+     */
+    private void awaitSettled() throws InterruptedException {
+        File file = dataFile.toFile();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        while (true) {
+            Thread.sleep(SETTLE_MILLIS);
+            long newLength = file.length();
+            long newLastModified = file.lastModified();
+            if (newLength == length && newLastModified == lastModified) {
+                return;
+            }
+            length = newLength;
+            lastModified = newLastModified;
+        }
+    }
+
+    /*
+     * Parse the data file, and pass the differences from its previous version on to the InventoryManager.
+     * A file that fails to parse (e.g. missing, or still being written), or that deletes more than
+     * MAX_DELETED_SHARE of the previous items, is reported and ignored; the next change to it is
+     * compared against the last version that was accepted.
+     */
+    private void reload() {
+        Inventory reloaded;
+        try {
+            reloaded = Inventory.loadFromCSV(dataFile.toString());
+        } catch (DuplicateKeyException | CorruptDataException ex) {
+            System.err.println("Ignoring changed data file: " + ex.getMessage());
+            return;
+        }
+
+        List<Change> changes = diff(previous, reloaded);
+        long deleted = changes.stream().filter(change -> change.itemDescription == null).count();
+        if (deleted > 0 && deleted > previousSize * MAX_DELETED_SHARE) {
+            System.err.println("Ignoring changed data file: it deletes " + deleted + " of " + previousSize + " items");
+            return;
+        }
+
+        previous = snapshot(reloaded);
+        previousSize = count(previous);
+        if (!changes.isEmpty()) {
+            manager.queueReloadedChanges(changes);
+        }
+    }
+
+    /*
+     * Utility method to take a snapshot of a version of the data file: the hash of each item's description
+     */
+    private static HashMap<String, HashMap<String, HashMap<String, Integer>>> snapshot(Inventory inventory) {
+        HashMap<String, HashMap<String, HashMap<String, Integer>>> snapshot = new HashMap<>();
+        HashMap<String, HashMap<String, HashMap<String, Item>>> data = inventory.getInventory();
+        for (String departmentName : data.keySet()) {
+            HashMap<String, HashMap<String, Item>> department = data.get(departmentName);
+            HashMap<String, HashMap<String, Integer>> departmentSnapshot = new HashMap<>();
+            for (String subCategoryName : department.keySet()) {
+                HashMap<String, Item> items = department.get(subCategoryName);
+                HashMap<String, Integer> itemsSnapshot = new HashMap<>(items.size() * 4 / 3 + 1);
+                for (Item item : items.values()) {
+                    itemsSnapshot.put(item.getName(), item.getDescription().hashCode());
+                }
+                departmentSnapshot.put(subCategoryName, itemsSnapshot);
+            }
+            snapshot.put(departmentName, departmentSnapshot);
+        }
+        return snapshot;
+    }
+
+    /*
+     * Utility method to count the items in a snapshot
+     */
+    private static int count(HashMap<String, HashMap<String, HashMap<String, Integer>>> snapshot) {
+        int count = 0;
+        for (HashMap<String, HashMap<String, Integer>> department : snapshot.values()) {
+            for (HashMap<String, Integer> items : department.values()) {
+                count += items.size();
+            }
+        }
+        return count;
+    }
+
+    /*
+     * Utility method to list the items that were added, deleted, or whose description changed
+     * between a snapshot of the previous version of the data file and its new version.
+     * Note: descriptions are compared by hash, so a change that keeps the same hash is (very rarely) missed
+     */
+    private static List<Change> diff(HashMap<String, HashMap<String, HashMap<String, Integer>>> oldData, Inventory newInventory) {
+        HashMap<String, HashMap<String, HashMap<String, Item>>> newData = newInventory.getInventory();
+        List<Change> changes = new ArrayList<>();
+
+        // Items that are new or changed in the new version
+        for (String departmentName : newData.keySet()) {
+            HashMap<String, HashMap<String, Integer>> oldDepartment = oldData.get(departmentName);
+            HashMap<String, HashMap<String, Item>> newDepartment = newData.get(departmentName);
+            for (String subCategoryName : newDepartment.keySet()) {
+                HashMap<String, Integer> oldItems = oldDepartment == null ? null : oldDepartment.get(subCategoryName);
+                HashMap<String, Item> newItems = newDepartment.get(subCategoryName);
+                for (Item newItem : newItems.values()) {
+                    Integer oldHash = oldItems == null ? null : oldItems.get(newItem.getName());
+                    if (oldHash == null || oldHash != newItem.getDescription().hashCode()) {
+                        changes.add(new Change(departmentName, subCategoryName, newItem.getName(), newItem.getDescription()));
+                    }
+                }
+            }
+        }
+
+        // Items that no longer exist in the new version
+        for (String departmentName : oldData.keySet()) {
+            HashMap<String, HashMap<String, Integer>> oldDepartment = oldData.get(departmentName);
+            HashMap<String, HashMap<String, Item>> newDepartment = newData.get(departmentName);
+            for (String subCategoryName : oldDepartment.keySet()) {
+                HashMap<String, Item> newItems = newDepartment == null ? null : newDepartment.get(subCategoryName);
+                for (String itemName : oldDepartment.get(subCategoryName).keySet()) {
+                    if (newItems == null || !newItems.containsKey(itemName)) {
+                        changes.add(new Change(departmentName, subCategoryName, itemName, null));
+                    }
+                }
+            }
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/*
+ * Spliterator over all items of an inventory, each paired with its department and subCategory.
+ * Backs Inventory.stream() and Inventory.parallelStream().
+ *
+ * Items are visited one subCategory at a time, with all subCategories of a department next to each other,
+ * so the encounter order keeps items grouped by department. Since item counts per subCategory are known
+ * up front, sizes are exact, and splitting divides the remaining subCategories into two halves holding
+ * (close to) the same number of items - so parallel streams stay balanced even when departments differ in size.
+ *
+ * The inventory should not be modified while it is being traversed.
+ */
+public class InventorySpliterator implements Spliterator<InventoryEntry> {
+    private final List<String> departmentNames;
+    private final List<String> subCategoryNames;
+    private final List<HashMap<String, Item>> subCategories;
+    // itemsBefore[i] = number of items in all subCategories before subCategory i
+    private final long[] itemsBefore;
+
+    // Range of subCategories not yet started: [index, fence)
+    private int index;
+    private final int fence;
+
+    // Traversal state of the subCategory currently in progress (if any)
+    private String currentDepartmentName;
+    private String currentSubCategoryName;
+    private Iterator<Item> currentItems;
+    private long currentRemaining;
+
+    /*
+     * Public constructor. Flattens the inventory into a list of subCategories (with their department)
+     */
+    public InventorySpliterator(HashMap<String, HashMap<String, HashMap<String, Item>>> inventory) {
+        departmentNames = new ArrayList<>();
+        subCategoryNames = new ArrayList<>();
+        subCategories = new ArrayList<>();
+        for (String departmentName : inventory.keySet()) {
+            HashMap<String, HashMap<String, Item>> department = inventory.get(departmentName);
+            for (String subCategoryName : department.keySet()) {
+                departmentNames.add(departmentName);
+                subCategoryNames.add(subCategoryName);
+                subCategories.add(department.get(subCategoryName));
+            }
+        }
+
+        itemsBefore = new long[subCategories.size() + 1];
+        for (int i = 0; i < subCategories.size(); i++) {
+            itemsBefore[i+1] = itemsBefore[i] + subCategories.get(i).size();
+        }
+        index = 0;
+        fence = subCategories.size();
+    }
+
+    /*
+     * Private constructor used when splitting: covers subCategories [index, fence) of the parent's lists
+     */
+    private InventorySpliterator(InventorySpliterator parent, int index, int fence) {
+        departmentNames = parent.departmentNames;
+        subCategoryNames = parent.subCategoryNames;
+        subCategories = parent.subCategories;
+        itemsBefore = parent.itemsBefore;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super InventoryEntry> action) {
+        while (currentItems == null || !currentItems.hasNext()) {
+            if (index >= fence) {
+                currentItems = null;
+                return false;
+            }
+            startSubCategory();
+        }
+        currentRemaining--;
+        action.accept(new InventoryEntry(currentDepartmentName, currentSubCategoryName, currentItems.next()));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super InventoryEntry> action) {
+        while (true) {
+            if (currentItems != null) {
+                while (currentItems.hasNext()) {
+                    action.accept(new InventoryEntry(currentDepartmentName, currentSubCategoryName, currentItems.next()));
+                }
+                currentRemaining = 0;
+                currentItems = null;
+            }
+            if (index >= fence) {
+                return;
+            }
+            startSubCategory();
+        }
+    }
+
+    /*
+     * Split off the first half (by number of items) of the subCategories not yet started.
+     * Returns null while a subCategory is in progress, or if fewer than two subCategories are left.
+     */
+    @Override
+    public Spliterator<InventoryEntry> trySplit() {
+        if (currentItems != null || fence - index < 2) {
+            return null;
+        }
+
+        // Find the subCategory boundary closest to half of the remaining items
+        long half = itemsBefore[index] + (itemsBefore[fence] - itemsBefore[index]) / 2;
+        int mid = Arrays.binarySearch(itemsBefore, index, fence + 1, half);
+        if (mid < 0) {
+            // Not a boundary: take the nearer of the boundaries just before and just after half
+            mid = -mid - 1;
+            if (half - itemsBefore[mid - 1] < itemsBefore[mid] - half) {
+                mid--;
+            }
+        }
+        mid = Math.max(index + 1, Math.min(fence - 1, mid));
+
+        InventorySpliterator prefix = new InventorySpliterator(this, index, mid);
+        index = mid;
+        return prefix;
+    }
+
+    /*
+     * Split off as many of the subCategories not yet started as hold at most maxItems items in total
+     * (but at least one subCategory). Used to process the items in bounded windows, in order.
+     * Returns null while a subCategory is in progress, or if no subCategories are left.
+     */
+    InventorySpliterator splitPrefix(long maxItems) {
+        if (currentItems != null || index >= fence) {
+            return null;
+        }
+
+        // Find the last subCategory boundary at most maxItems past the first subCategory
+        int end = Arrays.binarySearch(itemsBefore, index, fence + 1, itemsBefore[index] + maxItems);
+        if (end < 0) {
+            end = -end - 2;
+        }
+        // Several boundaries have the same value after empty subCategories; take them all in
+        while (end < fence && itemsBefore[end + 1] == itemsBefore[end]) {
+            end++;
+        }
+        end = Math.max(index + 1, Math.min(fence, end));
+
+        InventorySpliterator prefix = new InventorySpliterator(this, index, end);
+        index = end;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return currentRemaining + itemsBefore[fence] - itemsBefore[index];
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+
+    /*
+     * Private utility method to begin traversing the next subCategory
+     */
+    private void startSubCategory() {
+        currentDepartmentName = departmentNames.get(index);
+        currentSubCategoryName = subCategoryNames.get(index);
+        HashMap<String, Item> items = subCategories.get(index);
+        currentItems = items.values().iterator();
+        currentRemaining = items.size();
+        index++;
+    }
+}
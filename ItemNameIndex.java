@@ -0,0 +1,344 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/*
+ * Index over item names, used to look items up by name alone and to find the closest
+ * names to a mistyped one (e.g. "Galaxy Utlra" -> "Galaxy Ultra 12").
+ *
+ * Names are broken into trigrams (overlapping 3-character pieces, lowercased and padded with spaces),
+ * and each trigram maps to the items whose names contain it. A fuzzy lookup only compares the query
+ * against items sharing trigrams with it - most shared first - rather than scanning every name.
+ *
+ * Each item is numbered with an int id (its position in a list of items), and each trigram maps to
+ * a growable array of ids, so that indexing an item costs one array append per trigram rather than
+ * a hash set insertion. Removing an item only clears its slot in the list; its ids are dropped from
+ * the arrays (and the remaining items renumbered) once most ids are of removed items.
+ *
+ * The index is built by Inventory once its data is loaded (see Inventory.buildNameIndex and
+ * buildNameIndexInBackground), and then kept up to date as items are added, deleted, and renamed.
+ */
+public class ItemNameIndex {
+    // Maximum number of candidates (by shared trigrams) compared using edit distance, per result wanted
+    private static final int CANDIDATES_PER_RESULT = 20;
+    // A trigram is "common" (and skipped by fuzzy lookups) if more than 1/COMMON_TRIGRAM_SHARE
+    // of all items contain it - but never if fewer than MIN_COMMON_TRIGRAM_ITEMS do
+    private static final int COMMON_TRIGRAM_SHARE = 20;
+    private static final int MIN_COMMON_TRIGRAM_ITEMS = 1000;
+    // Number of items counted between checks of the time budget
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+    // The index is never compacted while it has fewer ids than this
+    private static final int MIN_COMPACTED_ITEMS = 1024;
+
+    /*
+     * Location of an indexed item: its department, subCategory, and name
+     */
+    public static class Entry {
+        private final String departmentName;
+        private final String subCategoryName;
+        private final String itemName;
+        // Position of the entry in the index's list of items
+        private int id;
+
+        public Entry(String departmentName, String subCategoryName, String itemName) {
+            this.departmentName = departmentName;
+            this.subCategoryName = subCategoryName;
+            this.itemName = itemName;
+        }
+
+        public String getDepartmentName() {
+            return departmentName;
+        }
+
+        public String getSubCategoryName() {
+            return subCategoryName;
+        }
+
+        public String getItemName() {
+            return itemName;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) other;
+            return departmentName.equals(entry.departmentName) &&
+                subCategoryName.equals(entry.subCategoryName) &&
+                itemName.equals(entry.itemName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(departmentName, subCategoryName, itemName);
+        }
+
+        @Override
+        public String toString() {
+            return itemName + " (" + departmentName + " > " + subCategoryName + ")";
+        }
+    }
+
+    /*
+     * Growable list of the ids of the items containing a trigram, in the order they were added.
+     * Ids of removed items are left in place (and skipped by lookups) until the index is compacted
+     */
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            // An item's trigrams are added together, so a trigram occurring twice in a name is caught here
+            if (size > 0 && ids[size-1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    // Items by id; removed items leave a null behind until the index is compacted
+    private final ArrayList<Entry> entries;
+    private final HashMap<String, Postings> trigrams;
+    private final HashMap<String, List<Entry>> names;
+    // Number of items in the index (not counting removed ones)
+    private int size;
+
+    public ItemNameIndex() {
+        entries = new ArrayList<Entry>();
+        trigrams = new HashMap<String, Postings>();
+        names = new HashMap<String, List<Entry>>();
+    }
+
+    // Add an item to the index
+    public void add(String departmentName, String subCategoryName, String itemName) {
+        Entry entry = new Entry(departmentName, subCategoryName, itemName);
+        entry.id = entries.size();
+        entries.add(entry);
+        names.computeIfAbsent(itemName, name -> new ArrayList<Entry>(1)).add(entry);
+        size++;
+
+        String padded = pad(itemName);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.computeIfAbsent(padded.substring(i, i + 3), key -> new Postings()).add(entry.id);
+        }
+    }
+
+    // Remove an item from the index (silently returns if it is not there)
+    public void remove(String departmentName, String subCategoryName, String itemName) {
+        List<Entry> sameName = names.get(itemName);
+        if (sameName == null) {
+            return;
+        }
+        int position = sameName.indexOf(new Entry(departmentName, subCategoryName, itemName));
+        if (position < 0) {
+            return;
+        }
+        Entry entry = sameName.remove(position);
+        if (sameName.isEmpty()) {
+            names.remove(itemName);
+        }
+        entries.set(entry.id, null);
+        size--;
+
+        // Once most ids are of removed items, drop them from the postings
+        if (entries.size() > MIN_COMPACTED_ITEMS && size < entries.size() / 2) {
+            compact();
+        }
+    }
+
+    // Re-index an item under a new name
+    public void rename(String departmentName, String subCategoryName, String itemName, String newItemName) {
+        remove(departmentName, subCategoryName, itemName);
+        add(departmentName, subCategoryName, newItemName);
+    }
+
+    // Return all items with exactly the provided name (in any department or subCategory)
+    public List<Entry> findExact(String itemName) {
+        List<Entry> sameName = names.get(itemName);
+        if (sameName == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<Entry>(sameName);
+    }
+
+    /*
+     * Private utility method to renumber the remaining items from 0, dropping the ids of
+     * removed items from the postings (and postings left empty)
+     */
+    private void compact() {
+        // New id of each item, or -1 for removed items
+        int[] newIds = new int[entries.size()];
+        int live = 0;
+        for (int id = 0; id < entries.size(); id++) {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                newIds[id] = -1;
+            } else {
+                newIds[id] = live;
+                entry.id = live;
+                entries.set(live++, entry);
+            }
+        }
+        entries.subList(live, entries.size()).clear();
+
+        Iterator<Postings> iterator = trigrams.values().iterator();
+        while (iterator.hasNext()) {
+            Postings postings = iterator.next();
+            int kept = 0;
+            for (int i = 0; i < postings.size; i++) {
+                int newId = newIds[postings.ids[i]];
+                if (newId >= 0) {
+                    postings.ids[kept++] = newId;
+                }
+            }
+            postings.size = kept;
+            if (kept == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /*
+     * Return up to maxResults items whose names are closest to the provided (possibly mistyped) name,
+     * closest first. Closeness is the case-insensitive edit distance between the names.
+     *
+     * Only items sharing at least one trigram with the query are considered, and of those only the ones
+     * sharing the most trigrams are compared. The query's rarest trigrams are counted first, and trigrams
+     * shared by a large part of all items (e.g. "ite" when most names start with "Item") are skipped,
+     * unless the query has no other trigrams. Counting and ranking candidates stop once half of budgetMillis
+     * has passed, leaving the other half for comparing them; comparing stops once budgetMillis has passed,
+     * but not before maxResults candidates (if there are that many) have been compared.
+     */
+    public List<Entry> findClosest(String itemName, int maxResults, long budgetMillis) {
+        long start = System.nanoTime();
+        long rankingDeadline = start + budgetMillis * 1_000_000L / 2;
+        long deadline = start + budgetMillis * 1_000_000L;
+
+        // Ids of the items of each of the query's trigrams, rarest trigram first
+        List<Postings> postings = new ArrayList<>();
+        for (String trigram : trigramsOf(itemName)) {
+            Postings ids = trigrams.get(trigram);
+            if (ids != null) {
+                postings.add(ids);
+            }
+        }
+        postings.sort((a, b) -> a.size - b.size);
+        int commonTrigramSize = Math.max(MIN_COMMON_TRIGRAM_ITEMS, size / COMMON_TRIGRAM_SHARE);
+
+        // Count the trigrams each item shares with the query (by id), noting the ids counted
+        int[] shared = new int[entries.size()];
+        int[] counted = new int[16];
+        int countedSize = 0;
+        counting:
+        for (Postings ids : postings) {
+            if (ids.size > commonTrigramSize && countedSize > 0) {
+                break;
+            }
+            for (int i = 0; i < ids.size; i++) {
+                int id = ids.ids[i];
+                if (shared[id]++ == 0 && entries.get(id) != null) {
+                    if (countedSize == counted.length) {
+                        counted = Arrays.copyOf(counted, countedSize * 2);
+                    }
+                    counted[countedSize++] = id;
+                }
+                if ((i + 1) % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > rankingDeadline) {
+                    break counting;
+                }
+            }
+        }
+
+        // Keep the candidates sharing the most trigrams (and, among those, closest in length to the query)
+        int maxCandidates = maxResults * CANDIDATES_PER_RESULT;
+        int queryLength = itemName.length();
+        Comparator<Integer> fewestShared = Comparator
+            .comparingInt((Integer id) -> shared[id])
+            .thenComparingInt(id -> -Math.abs(entries.get(id).getItemName().length() - queryLength));
+        PriorityQueue<Integer> best = new PriorityQueue<>(maxCandidates + 1, fewestShared);
+        for (int i = 0; i < countedSize; i++) {
+            if ((i + 1) % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > rankingDeadline) {
+                break;
+            }
+            int id = counted[i];
+            if (best.size() < maxCandidates) {
+                best.add(id);
+            } else if (fewestShared.compare(id, best.peek()) > 0) {
+                best.poll();
+                best.add(id);
+            }
+        }
+        List<Integer> candidates = new ArrayList<>(best);
+        candidates.sort(fewestShared.reversed());
+
+        // Compare the candidates, most shared trigrams first, until out of candidates or time
+        // (but always enough of them to fill the results)
+        String query = itemName.toLowerCase();
+        List<Entry> matches = new ArrayList<>();
+        HashMap<Entry, Integer> distances = new HashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (i >= maxResults && System.nanoTime() > deadline) {
+                break;
+            }
+            Entry entry = entries.get(candidates.get(i));
+            distances.put(entry, editDistance(query, entry.getItemName().toLowerCase()));
+            matches.add(entry);
+        }
+
+        matches.sort((a, b) -> distances.get(a) - distances.get(b));
+        return new ArrayList<Entry>(matches.subList(0, Math.min(maxResults, matches.size())));
+    }
+
+    /*
+     * Utility method to break a name into its distinct trigrams.
+     * The name is lowercased and padded, so that its first and last characters form trigrams of their own
+     */
+    private static HashSet<String> trigramsOf(String itemName) {
+        String padded = pad(itemName);
+        HashSet<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    /*
+     * Utility method to lowercase and pad a name before breaking it into trigrams
+     */
+    private static String pad(String itemName) {
+        return "  " + itemName.toLowerCase() + " ";
+    }
+
+    /*
+     * Utility method to compute the (Levenshtein) edit distance between two strings:
+     * the number of single-character insertions, deletions, and substitutions turning one into the other
+     */
+    private static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j-1] + (a.charAt(i-1) == b.charAt(j-1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j] + 1, current[j-1] + 1));
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
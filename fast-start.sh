@@ -0,0 +1,17 @@
+#!/bin/sh
+# Start Inventory Manager in fast-start mode: the main menu is shown while data.csv loads in the background.
+#
+# JVM startup is shortened with an application class-data sharing (AppCDS) archive (requires JDK 13+).
+# The first run records the classes the program uses into the archive when it exits;
+# later runs map them from the archive instead of loading and verifying them again.
+# Delete the archive after recompiling, so that it is regenerated.
+
+ARCHIVE="inventory-manager.jsa"
+
+cd "$(dirname "$0")" || exit 1
+
+if [ -f "$ARCHIVE" ]; then
+    exec java -XX:SharedArchiveFile="$ARCHIVE" -cp . InventoryManager --fast-start "$@"
+else
+    exec java -XX:ArchiveClassesAtExit="$ARCHIVE" -cp . InventoryManager --fast-start "$@"
+fi